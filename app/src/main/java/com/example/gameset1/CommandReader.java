@@ -0,0 +1,139 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Reads client lines straight from the socket bytes. MOVE card ids are decoded into the
+// reused ids[] holder, so the hot path builds no Strings or arrays, and bad input comes
+// back as INVALID instead of an exception. Only NAME/ROOM/admin lines create a String.
+class CommandReader {
+    static final int EOF = -1;
+    static final int INVALID = 0;
+    static final int MOVE = 1;
+    static final int NAME = 2;
+    static final int ROOM = 3;
+    static final int ADMIN = 4;
+
+    // Longest line, terminator included; SetGateway peeks first lines with the same limit
+    static final int MAX_LINE = 1024;
+
+    private static final byte[] MOVE_PREFIX = ascii("MOVE:");
+    private static final byte[] NAME_PREFIX = ascii("NAME:");
+    private static final byte[] ROOM_PREFIX = ascii("ROOM:");
+    private static final byte[] EXPORT_PREFIX = ascii("EXPORT:");
+    private static final byte[] IMPORT_PREFIX = ascii("IMPORT:");
+    private static final byte[] STATS_PREFIX = ascii("STATS:");
+
+    // Card ids of the last MOVE
+    final int[] ids = new int[3];
+
+    private final InputStream in;
+    private final byte[] buf = new byte[MAX_LINE];
+    private int pos, limit;
+    private boolean eof;
+
+    // Bounds of the last parsed line and of its argument
+    private byte[] src;
+    private int lineStart, lineEnd, argStart, argEnd;
+
+    CommandReader(InputStream in) { this.in = in; }
+
+    // Returns the next line's command, or EOF once the stream ends.
+    // Lines longer than the buffer are skipped whole and reported as INVALID.
+    int next() throws IOException {
+        boolean overflow = false;
+        while (true) {
+            for (int i = pos; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    int start = pos;
+                    pos = i + 1;
+                    if (overflow) return INVALID;
+                    int end = i > start && buf[i - 1] == '\r' ? i - 1 : i;
+                    return parse(buf, start, end);
+                }
+            }
+            if (eof) {
+                if (pos == limit) return EOF;
+                // Last line without a newline, like BufferedReader.readLine()
+                int start = pos;
+                pos = limit;
+                return overflow ? INVALID : parse(buf, start, limit);
+            }
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            if (limit == buf.length) {
+                overflow = true;
+                pos = limit = 0;
+            }
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) eof = true;
+            else limit += n;
+        }
+    }
+
+    // Parses one line (without its line terminator) of b[off, end).
+    int parse(byte[] b, int off, int end) {
+        src = b;
+        lineStart = off;
+        lineEnd = end;
+        if (startsWith(b, off, end, MOVE_PREFIX)) return parseMove(b, off + MOVE_PREFIX.length, end);
+        if (startsWith(b, off, end, NAME_PREFIX)) {
+            // Name runs up to the next ':' like the old split(":")[1]
+            argStart = off + NAME_PREFIX.length;
+            argEnd = argStart;
+            while (argEnd < end && b[argEnd] != ':') argEnd++;
+            return argEnd > argStart ? NAME : INVALID;
+        }
+        if (startsWith(b, off, end, ROOM_PREFIX)) {
+            argStart = off + ROOM_PREFIX.length;
+            argEnd = end;
+            return argEnd > argStart ? ROOM : INVALID;
+        }
+        if (startsWith(b, off, end, EXPORT_PREFIX) || startsWith(b, off, end, IMPORT_PREFIX)
+                || startsWith(b, off, end, STATS_PREFIX)) {
+            return ADMIN;
+        }
+        return INVALID;
+    }
+
+    // Expects exactly three card ids 0..80 separated by commas.
+    private int parseMove(byte[] b, int p, int end) {
+        for (int k = 0; k < 3; k++) {
+            int value = 0, digits = 0;
+            while (p < end && b[p] >= '0' && b[p] <= '9') {
+                if (++digits > 2) return INVALID;
+                value = value * 10 + (b[p++] - '0');
+            }
+            if (digits == 0 || value > 80) return INVALID;
+            ids[k] = value;
+            if (k < 2) {
+                if (p >= end || b[p] != ',') return INVALID;
+                p++;
+            }
+        }
+        return p == end ? MOVE : INVALID;
+    }
+
+    // Argument of the last NAME or ROOM line
+    String arg() {
+        return new String(src, argStart, argEnd - argStart, StandardCharsets.UTF_8);
+    }
+
+    // Whole last line, for admin requests
+    String line() {
+        return new String(src, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+    }
+
+    private static boolean startsWith(byte[] b, int off, int end, byte[] prefix) {
+        if (end - off < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (b[off + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -10,10 +10,10 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class MainActivity extends AppCompatActivity implements NetworkClient.NetworkListener {
 
@@ -26,6 +26,8 @@ public class MainActivity extends AppCompatActivity implements NetworkClient.Net
 
     private final Map<Integer, Integer> allScores = new HashMap<>();
     private final Map<Integer, String> playerNames = new HashMap<>();
+    // Formatted scoreboard rows sorted by player id; only the row that changed is re-formatted
+    private final TreeMap<Integer, String> scoreRows = new TreeMap<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -91,29 +93,17 @@ public class MainActivity extends AppCompatActivity implements NetworkClient.Net
         networkClient.start();
     }
 
+    private void updateRow(int pid) {
+        String name = playerNames.getOrDefault(pid, "P" + pid);
+        int score = allScores.getOrDefault(pid, 0);
+        scoreRows.put(pid, String.format("%s: %d", name, score));
+    }
+
     private void updateScoreDisplay() {
         StringBuilder sb = new StringBuilder();
-        List<Integer> sortedIds = new ArrayList<>(playerNames.keySet());
-        Collections.sort(sortedIds);
-
-        for (int pid : allScores.keySet()) {
-            if (!playerNames.containsKey(pid)) {
-                sortedIds.add(pid);
-            }
+        for (String row : scoreRows.values()) {
+            sb.append(row).append("\n");
         }
-
-        int count = 0;
-        for (int pid : sortedIds) {
-            String name = playerNames.getOrDefault(pid, "P" + pid);
-            int score = allScores.getOrDefault(pid, 0);
-
-            String entry = String.format("%s: %d", name, score);
-            sb.append(entry);
-
-            sb.append("\n");
-
-        }
-
         scoreText.setText(sb.toString());
     }
 
@@ -133,6 +123,14 @@ public class MainActivity extends AppCompatActivity implements NetworkClient.Net
     public void onScore(int playerId, int points) {
         int current = allScores.getOrDefault(playerId, 0);
         allScores.put(playerId, current + points);
+        updateRow(playerId);
+        updateScoreDisplay();
+    }
+
+    @Override
+    public void onScoreSet(int playerId, int score) {
+        allScores.put(playerId, score);
+        updateRow(playerId);
         updateScoreDisplay();
     }
 
@@ -142,6 +140,30 @@ public class MainActivity extends AppCompatActivity implements NetworkClient.Net
         playerNames.putAll(names);
         // Important: Remove scores for players who are no longer in the game
         allScores.keySet().retainAll(playerNames.keySet());
+        scoreRows.clear();
+        for (int pid : playerNames.keySet()) updateRow(pid);
+        updateScoreDisplay();
+    }
+
+    @Override
+    public void onPlayerJoin(int playerId, String name) {
+        playerNames.put(playerId, name);
+        updateRow(playerId);
+        updateScoreDisplay();
+    }
+
+    @Override
+    public void onPlayerLeave(int playerId) {
+        playerNames.remove(playerId);
+        allScores.remove(playerId);
+        scoreRows.remove(playerId);
+        updateScoreDisplay();
+    }
+
+    @Override
+    public void onPlayerRename(int playerId, String name) {
+        playerNames.put(playerId, name);
+        updateRow(playerId);
         updateScoreDisplay();
     }
 
@@ -160,6 +182,7 @@ public class MainActivity extends AppCompatActivity implements NetworkClient.Net
     @Override
     public void onReset() {
         allScores.clear();
+        for (int pid : scoreRows.keySet()) updateRow(pid);
         updateScoreDisplay();
         Toast.makeText(this, "New Game Started!", Toast.LENGTH_SHORT).show();
     }
@@ -25,6 +25,11 @@ public class NetworkClient extends Thread {
         void onMessage(String msg);
         void onScore(int playerId, int points);
         void onPlayerListUpdate(Map<Integer, String> names);
+        // Roster deltas; the full list only arrives once, right after joining
+        void onPlayerJoin(int playerId, String name);
+        void onPlayerLeave(int playerId);
+        void onPlayerRename(int playerId, String name);
+        void onScoreSet(int playerId, int score);
         // NEW: Game Over and Reset callbacks
         void onGameOver(int winnerId);
         void onReset();
@@ -79,6 +84,26 @@ public class NetworkClient extends Thread {
             int score = Integer.parseInt(parts[2]);
             uiHandler.post(() -> listener.onScore(pid, score));
         }
+        else if (msg.startsWith("SCORE_SET:")) {
+            String[] parts = msg.split(":");
+            int pid = Integer.parseInt(parts[1]);
+            int score = Integer.parseInt(parts[2]);
+            uiHandler.post(() -> listener.onScoreSet(pid, score));
+        }
+        else if (msg.startsWith("PLAYER_JOIN:")) {
+            String[] parts = msg.split(":", 3);
+            int pid = Integer.parseInt(parts[1]);
+            uiHandler.post(() -> listener.onPlayerJoin(pid, parts[2]));
+        }
+        else if (msg.startsWith("PLAYER_LEAVE:")) {
+            int pid = Integer.parseInt(msg.split(":")[1]);
+            uiHandler.post(() -> listener.onPlayerLeave(pid));
+        }
+        else if (msg.startsWith("PLAYER_RENAME:")) {
+            String[] parts = msg.split(":", 3);
+            int pid = Integer.parseInt(parts[1]);
+            uiHandler.post(() -> listener.onPlayerRename(pid, parts[2]));
+        }
         else if (msg.startsWith("NAMES:")) {
             String data = msg.substring(6);
             Map<Integer, String> map = new HashMap<>();
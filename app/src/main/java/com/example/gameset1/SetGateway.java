@@ -0,0 +1,308 @@
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Routes each client to a SetServer node by room id (consistent hashing) and proxies the bytes.
+// Usage: java SetGateway <port> <host:port> [<host:port> ...]
+// Console commands: "add host:port", "drain host:port", "nodes".
+// A room stays on the node it was first placed on until that node is drained, so "add"
+// only takes new rooms. Draining disconnects the room's players; the Android client does
+// not reconnect by itself, so they have to join again.
+public class SetGateway {
+    private static final int VIRTUAL_NODES = 64;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int ADMIN_TIMEOUT_MS = 5000;
+    private static final int LOCK_STRIPES = 64;
+
+    // Hash ring: virtual node hash -> "host:port"
+    private static final TreeMap<Long, String> ring = new TreeMap<>();
+    // Node each room with players lives on; new sessions follow it and a drain moves it.
+    // The entry goes when the room's last session ends, like the room on the server.
+    private static final Map<String, String> roomNodes = new ConcurrentHashMap<>();
+    // Striped by room id and held while a session is routed or its room is migrated,
+    // so nobody joins mid-move
+    private static final Object[] roomLocks = new Object[LOCK_STRIPES];
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) roomLocks[i] = new Object();
+    }
+    private static final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java SetGateway <port> <host:port> [<host:port> ...]");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        try {
+            for (int i = 1; i < args.length; i++) addNode(args[i]);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        System.out.println(">>> SET GATEWAY STARTED ON PORT " + port + " -> " + nodes());
+
+        new Thread(SetGateway::console).start();
+
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        while (true) {
+            SocketChannel client = server.accept();
+            new Session(client).start();
+        }
+    }
+
+    // Only well-formed "host:port" nodes get on the ring; sessions parse them unchecked.
+    static void addNode(String node) {
+        int colon = node.lastIndexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("Bad node " + node + ", expected host:port");
+        int port;
+        try {
+            port = Integer.parseInt(node.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad port in node " + node);
+        }
+        if (port < 1 || port > 65535) throw new IllegalArgumentException("Bad port in node " + node);
+
+        synchronized (ring) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) ring.put(hash(node + "#" + i), node);
+        }
+    }
+
+    static Set<String> nodes() {
+        synchronized (ring) {
+            return new TreeSet<>(ring.values());
+        }
+    }
+
+    static String nodeFor(String room) {
+        synchronized (ring) {
+            if (ring.isEmpty()) return null;
+            Map.Entry<Long, String> e = ring.ceilingEntry(hash(room));
+            return (e != null ? e : ring.firstEntry()).getValue();
+        }
+    }
+
+    private static Object roomLock(String room) {
+        return roomLocks[(room.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    // Forgets where the room lives once none of its sessions is left on that node.
+    // A room the drain moved keeps its new entry so its players find it again.
+    private static void forgetIfEmpty(String room, String node) {
+        synchronized (roomLock(room)) {
+            for (Session s : sessions) {
+                if (room.equals(s.room)) return;
+            }
+            roomNodes.remove(room, node);
+        }
+    }
+
+    // Takes the node off the ring and moves each of its rooms to the node that now owns it.
+    // EXPORT closes the room on the old node before its players are disconnected, so their
+    // leaving cannot close it first and nothing changes between EXPORT and IMPORT. Rooms
+    // that cannot be exported (e.g. the node is already dead) restart on the new node with
+    // a fresh table and are listed at the end.
+    static void drain(String node) {
+        synchronized (ring) {
+            if (!ring.containsValue(node)) {
+                System.out.println("Unknown node " + node);
+                return;
+            }
+            if (nodes().size() == 1) {
+                System.out.println("Cannot drain the last node");
+                return;
+            }
+            ring.values().removeIf(node::equals);
+        }
+
+        List<String> lost = new ArrayList<>();
+        for (Map.Entry<String, String> entry : roomNodes.entrySet()) {
+            if (!entry.getValue().equals(node)) continue;
+            String room = entry.getKey();
+            synchronized (roomLock(room)) {
+                String target = nodeFor(room);
+                String snapshot = null;
+                try {
+                    String reply = adminCall(node, "EXPORT:" + room);
+                    if (reply == null || !reply.startsWith("SNAPSHOT:") && !reply.equals("MSG:No such room")) {
+                        throw new IOException("export answered " + reply);
+                    }
+                    if (reply.startsWith("SNAPSHOT:")) snapshot = reply.substring(9);
+                } catch (IOException e) {
+                    System.out.println("Could not export room " + room + ": " + e.getMessage());
+                    lost.add(room);
+                }
+                closeSessions(node, room);
+
+                if (snapshot == null) {
+                    // Nothing to move: the room closed when its last player left
+                    roomNodes.remove(room, node);
+                    continue;
+                }
+                try {
+                    String reply = adminCall(target, "IMPORT:" + snapshot);
+                    if (!"OK".equals(reply)) throw new IOException("import answered " + reply);
+                    System.out.println("Moved room " + room + ": " + node + " -> " + target);
+                    roomNodes.put(room, target);
+                } catch (IOException e) {
+                    System.out.println("Could not move room " + room + ": " + e.getMessage());
+                    lost.add(room);
+                    roomNodes.remove(room, node);
+                }
+            }
+        }
+
+        closeSessions(node, null);
+        System.out.println("Drained " + node + (lost.isEmpty() ? "" : ", rooms not migrated: " + lost));
+    }
+
+    // Closes the sessions proxied to node, only those of one room unless room is null.
+    private static void closeSessions(String node, String room) {
+        for (Session s : sessions) {
+            if (node.equals(s.node) && (room == null || room.equals(s.room))) s.close();
+        }
+    }
+
+    private static String adminCall(String node, String request) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host(node), port(node)), ADMIN_TIMEOUT_MS);
+            socket.setSoTimeout(ADMIN_TIMEOUT_MS);
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            out.println(request);
+            return in.readLine();
+        }
+    }
+
+    private static void console() {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        try {
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.trim().split("\\s+");
+                // One bad command must not stop the console
+                try {
+                    if (parts[0].equals("add") && parts.length == 2) {
+                        addNode(parts[1]);
+                        System.out.println("Added " + parts[1]);
+                    }
+                    else if (parts[0].equals("drain") && parts.length == 2) drain(parts[1]);
+                    else if (parts[0].equals("nodes")) System.out.println(nodes());
+                    else if (!parts[0].isEmpty()) System.out.println("Commands: add <node>, drain <node>, nodes");
+                } catch (RuntimeException e) {
+                    System.out.println("Command failed: " + e);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    static long hash(String key) {
+        try {
+            byte[] d = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) h = (h << 8) | (d[i] & 0xff);
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String host(String node) { return node.substring(0, node.lastIndexOf(':')); }
+    private static int port(String node) { return Integer.parseInt(node.substring(node.lastIndexOf(':') + 1)); }
+
+    static class Session extends Thread {
+        final SocketChannel client;
+        volatile SocketChannel backend;
+        volatile String node;
+        volatile String room;
+
+        Session(SocketChannel client) { this.client = client; }
+
+        public void run() {
+            sessions.add(this);
+            try {
+                // Peek the first line to find the room; it is forwarded unchanged afterwards.
+                ByteBuffer first = ByteBuffer.allocate(CommandReader.MAX_LINE);
+                int newline = -1;
+                while (newline < 0 && first.hasRemaining()) {
+                    if (client.read(first) < 0) return;
+                    for (int i = 0; i < first.position(); i++) {
+                        if (first.get(i) == '\n') { newline = i; break; }
+                    }
+                }
+                if (newline < 0) {
+                    // The server would skip this line too, so say why instead of hanging up silently
+                    System.out.println("Gateway session rejected: first line over " + CommandReader.MAX_LINE + " bytes");
+                    first.clear();
+                    first.put("MSG:Line too long\n".getBytes(StandardCharsets.UTF_8)).flip();
+                    while (first.hasRemaining()) client.write(first);
+                    return;
+                }
+
+                int end = newline > 0 && first.get(newline - 1) == '\r' ? newline - 1 : newline;
+                String line = new String(first.array(), 0, end, StandardCharsets.UTF_8);
+                // Admin requests are only meant for the gateway itself, never from clients
+                if (SetServer.isAdmin(line)) return;
+                String room = line.startsWith("ROOM:") ? SetServer.normalizeRoom(line.substring(5)) : SetServer.DEFAULT_ROOM;
+
+                synchronized (roomLock(room)) {
+                    // Rooms already placed stay put; only new rooms go by the ring
+                    node = roomNodes.computeIfAbsent(room, SetGateway::nodeFor);
+                    this.room = room;
+                    backend = SocketChannel.open(new InetSocketAddress(host(node), port(node)));
+
+                    first.flip();
+                    while (first.hasRemaining()) backend.write(first);
+                }
+
+                Thread down = new Thread(() -> pump(backend, client));
+                down.start();
+                pump(client, backend);
+            } catch (IOException e) {
+                System.out.println("Gateway session error: " + e.getMessage());
+            } finally {
+                close();
+                sessions.remove(this);
+                if (room != null) forgetIfEmpty(room, node);
+            }
+        }
+
+        // Copies through a direct buffer so bytes go socket to socket without a Java heap copy.
+        private void pump(SocketChannel src, SocketChannel dst) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            try {
+                while (src.read(buf) >= 0) {
+                    buf.flip();
+                    while (buf.hasRemaining()) dst.write(buf);
+                    buf.clear();
+                }
+            } catch (IOException ignored) {
+                // Either side went away; close() below tears down the other one.
+            } finally {
+                close();
+            }
+        }
+
+        // Each channel in its own try, so a failing client close cannot leak the backend.
+        void close() {
+            try {
+                client.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            try {
+                if (backend != null) backend.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
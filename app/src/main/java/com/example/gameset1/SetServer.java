@@ -2,180 +2,423 @@ import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 public class SetServer {
-    private static final int PORT = 12345;
+    private static final int DEFAULT_PORT = 12345;
     private static final int TICK_MS = 500;
+    // Per-connection MOVE allowance: sustained rate and burst size
+    private static final int MOVES_PER_SECOND = 5;
+    private static final int MOVE_BURST = 5;
+    // Ticks an empty room (e.g. one just imported) stays open waiting for players: one minute
+    private static final int EMPTY_ROOM_TICKS = 120;
+    static final String DEFAULT_ROOM = "main";
 
-    // Global State
-    private static final List<Card> board = Collections.synchronizedList(new ArrayList<>());
-    private static final List<Card> deck = new ArrayList<>();
-    private static final List<ClientHandler> players = new CopyOnWriteArrayList<>();
-    private static final List<MoveRequest> moveBuffer = Collections.synchronizedList(new ArrayList<>());
-    
-    // Scores and Names
-    private static final Map<Integer, Integer> playerScores = new ConcurrentHashMap<>();
-    private static final Map<Integer, String> playerNames = new ConcurrentHashMap<>();
+    // Global State: one table per room id
+    private static final Map<String, Room> rooms = new ConcurrentHashMap<>();
 
     private static int playerCount = 0;
-    private static long tickCount = 0;
 
     public static void main(String[] args) throws IOException {
-        System.out.println(">>> SET GAME SERVER STARTED ON PORT " + PORT);
-        initializeDeck();
-        deal(12);
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        System.out.println(">>> SET GAME SERVER STARTED ON PORT " + port);
+        room(DEFAULT_ROOM);
 
         new Thread(SetServer::tickLoop).start();
 
-        ServerSocket serverSocket = new ServerSocket(PORT);
+        ServerSocket serverSocket = new ServerSocket(port);
         while (true) {
             Socket socket = serverSocket.accept();
             playerCount++;
             System.out.println("Player connected: ID " + playerCount);
-            
-            // Initialize
-            playerScores.put(playerCount, 0);
-            playerNames.put(playerCount, "Player " + playerCount);
-            
+
             ClientHandler player = new ClientHandler(socket, playerCount);
-            players.add(player);
             player.start();
         }
     }
 
+    // Room ids are normalized the same way by SetServer and SetGateway, so a ROOM line is
+    // routed to and opened as the same table.
+    static String normalizeRoom(String raw) {
+        String id = raw.trim();
+        return id.isEmpty() ? DEFAULT_ROOM : id;
+    }
+
+    static Room room(String id) {
+        return rooms.computeIfAbsent(id, key -> new Room(key, SYSTEM_CLOCK, new Random()));
+    }
+
     private static void tickLoop() {
         while (true) {
             try {
-                Thread.sleep(TICK_MS);
-                synchronized (board) {}
-                processMoveBuffer();
-                tickCount++;
-                broadcast("TICK:" + tickCount);
+                tick(SYSTEM_CLOCK, rooms.values());
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
         }
     }
 
-    private static void processMoveBuffer() {
-        synchronized (moveBuffer) {
-            if (moveBuffer.isEmpty()) return;
+    // One pass of the tick loop. Tests pass a virtual clock whose sleep returns at once.
+    static void tick(Clock clock, Iterable<Room> tables) throws InterruptedException {
+        clock.sleep(TICK_MS);
+        for (Room r : tables) r.tick();
+    }
+
+    interface Clock {
+        long nanoTime();
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        public long nanoTime() { return System.nanoTime(); }
+        public void sleep(long millis) throws InterruptedException { Thread.sleep(millis); }
+    };
+
+    // What a room needs from a connected player: a socket ClientHandler, or an in-memory peer in tests.
+    interface Peer {
+        int pid();
+        void send(String msg);
+    }
+
+    static boolean isSet(Card a, Card b, Card c) {
+        if(a==null || b==null || c==null) return false;
+        return ((a.number + b.number + c.number) % 3 == 0) &&
+                ((a.shape + b.shape + c.shape) % 3 == 0) &&
+                ((a.shading + b.shading + c.shading) % 3 == 0) &&
+                ((a.color + b.color + c.color) % 3 == 0);
+    }
+
+    static class Room {
+        final String id;
+        private final List<Card> board = Collections.synchronizedList(new ArrayList<>());
+        private final List<Card> deck = new ArrayList<>();
+        private final List<Peer> players = new CopyOnWriteArrayList<>();
+        // One reusable move slot per player, sorted by player id; a later move in the same
+        // tick replaces the earlier one
+        private final ConcurrentSkipListMap<Integer, MoveRequest> moveSlots = new ConcurrentSkipListMap<>();
+        private final int[] tickIds = new int[3];
+        final LongAdder rateLimitedMoves = new LongAdder();
+        final LongAdder replacedMoves = new LongAdder();
+        final LongAdder invalidLines = new LongAdder();
+
+        // Scores and Names
+        private final Map<Integer, Integer> playerScores = new ConcurrentHashMap<>();
+        private final Map<Integer, String> playerNames = new ConcurrentHashMap<>();
+
+        private long tickCount = 0;
+        private String rosterLine;
+        // Set once the room is dropped from the server; guarded by playerNames like the roster
+        private boolean closed;
+        private int emptyTicks;
+
+        final Clock clock;
+        private final Random rng;
+
+        Room(String id, Clock clock, Random rng) {
+            this.id = id;
+            this.clock = clock;
+            this.rng = rng;
+            System.out.println("Room opened: " + id);
+            initializeDeck();
+            deal(12);
+        }
+
+        void tick() {
+            synchronized (board) {}
+            processMoveBuffer();
+            tickCount++;
+            broadcast("TICK:" + tickCount);
+
+            // A room nobody joined (or rejoined after a migration) does not stay open forever
+            if (players.isEmpty() && ++emptyTicks >= EMPTY_ROOM_TICKS) {
+                synchronized (playerNames) {
+                    if (players.isEmpty()) close(false);
+                }
+            } else if (!players.isEmpty()) {
+                emptyTicks = 0;
+            }
+        }
+
+        // Drops the room from the server so it is no longer ticked and its id opens a fresh table.
+        // The default room only closes when forced by an EXPORT. Caller holds playerNames.
+        private void close(boolean force) {
+            if (closed || !force && id.equals(DEFAULT_ROOM)) return;
+            closed = true;
+            if (rooms.remove(id, this)) System.out.println("Room closed: " + id);
+        }
+
+        // Roster changes go out as PLAYER_JOIN/PLAYER_LEAVE/PLAYER_RENAME deltas; only a new
+        // joiner gets the full NAMES line. Guarded by playerNames so deltas and the cached
+        // roster are always seen in the same order.
+        // Returns false if the room closed meanwhile; the caller then opens a fresh one.
+        boolean join(Peer p) {
+            synchronized (playerNames) {
+                if (closed) return false;
+                String name = "Player " + p.pid();
+                playerScores.put(p.pid(), 0);
+                playerNames.put(p.pid(), name);
+                moveSlots.put(p.pid(), new MoveRequest(p.pid()));
+                rosterLine = null;
+                broadcast("PLAYER_JOIN:" + p.pid() + ":" + name);
+                players.add(p);
+
+                p.send(rosterLine());
+                for (Map.Entry<Integer, Integer> entry : playerScores.entrySet()) {
+                    if (entry.getValue() > 0) p.send("SCORE_SET:" + entry.getKey() + ":" + entry.getValue());
+                }
+                return true;
+            }
+        }
+
+        void leave(Peer p) {
+            synchronized (playerNames) {
+                players.remove(p);
+
+                // Remove from maps
+                playerNames.remove(p.pid());
+                playerScores.remove(p.pid());
+                moveSlots.remove(p.pid());
+                rosterLine = null;
+
+                // Tell the remaining clients
+                broadcast("PLAYER_LEAVE:" + p.pid());
+
+                // The last player out closes the room
+                if (players.isEmpty()) close(false);
+            }
+        }
+
+        // The joined player's move slot; ClientHandler keeps it so intake needs no lookup.
+        MoveRequest moveSlot(int pid) {
+            return moveSlots.get(pid);
+        }
+
+        // Rate-limits against the room clock, then stores the move in the player's slot.
+        // Allocation-free: ids are copied into the slot, not into a new request.
+        void submitMove(TokenBucket tokens, MoveRequest slot, int[] ids) {
+            if (!tokens.tryAcquire(clock.nanoTime())) {
+                rateLimitedMoves.increment();
+                return;
+            }
+            if (slot.set(ids[0], ids[1], ids[2])) replacedMoves.increment();
+        }
+
+        void rename(int pid, String name) {
+            synchronized (playerNames) {
+                playerNames.put(pid, name);
+                rosterLine = null;
+                broadcast("PLAYER_RENAME:" + pid + ":" + name);
+            }
+        }
 
-            moveBuffer.sort(Comparator.comparingInt(m -> m.playerId));
-            List<Card> cardsToRemove = new ArrayList<>();
+        // Deck and board changes happen under the deck lock; move intake never takes it.
+        private void processMoveBuffer() {
+            synchronized (deck) {
+                List<Card> cardsToRemove = new ArrayList<>();
+                int[] ids = tickIds;
 
-            for (MoveRequest req : moveBuffer) {
-                boolean conflict = false;
-                for (int id : req.cardIds) {
-                    boolean found = false;
-                    for (Card c : board) {
-                        if (c.id == id && !cardsToRemove.contains(c)) {
-                            found = true;
+                // Slots iterate in player id order, so the lower id wins a conflict
+                for (MoveRequest req : moveSlots.values()) {
+                    if (!req.take(ids)) continue;
+                    boolean conflict = false;
+                    for (int id : ids) {
+                        boolean found = false;
+                        for (Card c : board) {
+                            if (c.id == id && !cardsToRemove.contains(c)) {
+                                found = true;
+                                break;
+                            }
+                        }
+                        if (!found) {
+                            conflict = true;
                             break;
                         }
                     }
-                    if (!found) {
-                        conflict = true;
-                        break;
-                    }
-                }
 
-                if (!conflict) {
-                    Card c1 = findCard(req.cardIds[0]);
-                    Card c2 = findCard(req.cardIds[1]);
-                    Card c3 = findCard(req.cardIds[2]);
-
-                    if (isSet(c1, c2, c3)) {
-                        System.out.println("Set found by " + req.playerId);
-                        cardsToRemove.add(c1);
-                        cardsToRemove.add(c2);
-                        cardsToRemove.add(c3);
-                        
-                        int newScore = playerScores.merge(req.playerId, 1, Integer::sum);
-                        broadcast("SCORE:" + req.playerId + ":1");
-                        
-                        if (newScore >= 3) {
-                            broadcast("WIN:" + req.playerId);
-                            for (Integer key : playerScores.keySet()) {
-                                playerScores.put(key, 0);
+                    if (!conflict) {
+                        Card c1 = findCard(ids[0]);
+                        Card c2 = findCard(ids[1]);
+                        Card c3 = findCard(ids[2]);
+
+                        if (isSet(c1, c2, c3)) {
+                            System.out.println("Set found by " + req.playerId + " in " + id);
+                            cardsToRemove.add(c1);
+                            cardsToRemove.add(c2);
+                            cardsToRemove.add(c3);
+
+                            int newScore = playerScores.merge(req.playerId, 1, Integer::sum);
+                            broadcast("SCORE:" + req.playerId + ":1");
+
+                            if (newScore >= 3) {
+                                broadcast("WIN:" + req.playerId);
+                                for (Integer key : playerScores.keySet()) {
+                                    playerScores.put(key, 0);
+                                }
+                                broadcast("RESET");
                             }
-                            broadcast("RESET");
-                        }
 
+                        }
+                    } else {
+                        sendToPlayer(req.playerId, "MSG:Too Slow!");
                     }
-                } else {
-                    sendToPlayer(req.playerId, "MSG:Too Slow!");
+                }
+
+                if (!cardsToRemove.isEmpty()) {
+                    board.removeAll(cardsToRemove);
+                    deal(3);
+                    broadcastBoard();
                 }
             }
+        }
 
-            if (!cardsToRemove.isEmpty()) {
-                board.removeAll(cardsToRemove);
-                deal(3);
-                broadcastBoard();
+        void broadcast(String msg) {
+            for (Peer p : players) p.send(msg);
+        }
+
+        private void sendToPlayer(int id, String msg) {
+            for (Peer p : players) {
+                if (p.pid() == id) p.send(msg);
             }
-            moveBuffer.clear();
         }
-    }
 
-    private static void broadcast(String msg) {
-        for (ClientHandler p : players) p.send(msg);
-    }
+        // Full roster, rebuilt only after the roster changed. Caller holds playerNames.
+        private String rosterLine() {
+            if (rosterLine == null) {
+                StringBuilder sb = new StringBuilder("NAMES:");
+                for (Map.Entry<Integer, String> entry : playerNames.entrySet()) {
+                    sb.append(entry.getKey()).append("-").append(entry.getValue()).append(",");
+                }
+                rosterLine = sb.toString();
+            }
+            return rosterLine;
+        }
 
-    private static void sendToPlayer(int id, String msg) {
-        for (ClientHandler p : players) {
-            if (p.pid == id) p.send(msg);
+        void sendBoard(Peer p) {
+            p.send(boardLine());
         }
-    }
 
-    private static void broadcastNames() {
-        StringBuilder sb = new StringBuilder("NAMES:");
-        for (Map.Entry<Integer, String> entry : playerNames.entrySet()) {
-            sb.append(entry.getKey()).append("-").append(entry.getValue()).append(",");
+        void broadcastBoard() {
+            broadcast(boardLine());
         }
-        broadcast(sb.toString());
-    }
 
-    private static void broadcastBoard() {
-        StringBuilder sb = new StringBuilder("BOARD:");
-        synchronized (board) {
-            for (Card c : board) {
-                sb.append(c.id).append("-").append(c.number).append("-")
-                  .append(c.shape).append("-").append(c.shading).append("-")
-                  .append(c.color).append(",");
+        private String boardLine() {
+            StringBuilder sb = new StringBuilder("BOARD:");
+            synchronized (board) {
+                for (Card c : board) {
+                    sb.append(c.id).append("-").append(c.number).append("-")
+                      .append(c.shape).append("-").append(c.shading).append("-")
+                      .append(c.color).append(",");
+                }
             }
+            return sb.toString();
+        }
+
+        private void deal(int count) {
+            for (int i = 0; i < count; i++) {
+                if (!deck.isEmpty()) board.add(deck.remove(0));
+            }
+        }
+
+        private void initializeDeck() {
+            deck.clear();
+            for(int n=0; n<3; n++)
+                for(int s=0; s<3; s++)
+                    for(int sh=0; sh<3; sh++)
+                        for(int c=0; c<3; c++)
+                            deck.add(new Card(n, s, sh, c));
+            Collections.shuffle(deck, rng);
+        }
+
+        private Card findCard(int id) {
+            synchronized (board) {
+                for(Card c : board) if(c.id == id) return c;
+            }
+            return null;
+        }
+
+        // Snapshot format: <room>:<tick>:<deck ids>:<board ids>, ids comma separated.
+        // Scores are not carried over: player ids only live as long as a connection.
+        String snapshot() {
+            synchronized (deck) {
+                synchronized (board) {
+                    return id + ":" + tickCount + ":" + joinIds(deck) + ":" + joinIds(board);
+                }
+            }
+        }
+
+        void restore(long tick, List<Card> newDeck, List<Card> newBoard) {
+            synchronized (deck) {
+                synchronized (board) {
+                    for (MoveRequest req : moveSlots.values()) req.take(tickIds);
+                    tickCount = tick;
+                    deck.clear();
+                    deck.addAll(newDeck);
+                    board.clear();
+                    board.addAll(newBoard);
+                }
+            }
+            broadcastBoard();
+        }
+
+        // Snapshot for a migration. The room is closed first, so no move or joiner lands on
+        // this node after the snapshot; its players are disconnected by the gateway.
+        String export() {
+            synchronized (playerNames) {
+                close(true);
+            }
+            return snapshot();
         }
-        broadcast(sb.toString());
-    }
 
-    private static void deal(int count) {
-        for (int i = 0; i < count; i++) {
-            if (!deck.isEmpty()) board.add(deck.remove(0));
+        String stats() {
+            return id + ":rateLimited=" + rateLimitedMoves.sum() + ",replaced=" + replacedMoves.sum()
+                    + ",invalid=" + invalidLines.sum();
+        }
+
+        private static String joinIds(List<Card> cards) {
+            StringBuilder sb = new StringBuilder();
+            for (Card c : cards) {
+                if (sb.length() > 0) sb.append(",");
+                sb.append(c.id);
+            }
+            return sb.toString();
         }
     }
 
-    private static void initializeDeck() {
-        deck.clear();
-        for(int n=0; n<3; n++)
-            for(int s=0; s<3; s++)
-                for(int sh=0; sh<3; sh++)
-                    for(int c=0; c<3; c++)
-                        deck.add(new Card(n, s, sh, c));
-        Collections.shuffle(deck);
+    static boolean isAdmin(String line) {
+        return line.startsWith("EXPORT:") || line.startsWith("IMPORT:") || line.startsWith("STATS:");
     }
 
-    private static Card findCard(int id) {
-        synchronized (board) {
-            for(Card c : board) if(c.id == id) return c;
+    // "EXPORT:<room>" closes the room and answers with "SNAPSHOT:<snapshot>",
+    // "IMPORT:<snapshot>" answers with "OK",
+    // "STATS:<room>" answers with the room's dropped-move and invalid-line counters.
+    // Used by SetGateway to move rooms off a node being drained, so only loopback peers may call it.
+    private static void handleAdmin(ClientHandler h, String line) {
+        if (!h.socket.getInetAddress().isLoopbackAddress()) {
+            h.send("MSG:Forbidden");
+            return;
+        }
+        if (line.startsWith("STATS:")) {
+            Room r = rooms.get(normalizeRoom(line.substring(6)));
+            h.send(r == null ? "MSG:No such room" : "STATS:" + r.stats());
+        } else if (line.startsWith("EXPORT:")) {
+            Room r = rooms.get(normalizeRoom(line.substring(7)));
+            h.send(r == null ? "MSG:No such room" : "SNAPSHOT:" + r.export());
+        } else {
+            String[] parts = line.substring(7).split(":", -1);
+            room(normalizeRoom(parts[0])).restore(Long.parseLong(parts[1]), parseIds(parts[2]), parseIds(parts[3]));
+            System.out.println("Room imported: " + parts[0]);
+            h.send("OK");
         }
-        return null;
     }
 
-    private static boolean isSet(Card a, Card b, Card c) {
-        if(a==null || b==null || c==null) return false;
-        return ((a.number + b.number + c.number) % 3 == 0) &&
-                ((a.shape + b.shape + c.shape) % 3 == 0) &&
-                ((a.shading + b.shading + c.shading) % 3 == 0) &&
-                ((a.color + b.color + c.color) % 3 == 0);
+    private static List<Card> parseIds(String csv) {
+        List<Card> cards = new ArrayList<>();
+        if (csv.isEmpty()) return cards;
+        for (String s : csv.split(",")) {
+            int id = Integer.parseInt(s);
+            cards.add(new Card(id / 27, id / 9 % 3, id / 3 % 3, id % 3));
+        }
+        return cards;
     }
 
     static class Card {
@@ -186,47 +429,102 @@ public class SetServer {
         }
     }
 
+    // A player's pending move for the coming tick: three card ids (0..80, 7 bits each) and a
+    // pending bit packed in one int, so intake overwrites it in place and the tick takes it
+    // atomically without either side allocating or locking.
     static class MoveRequest {
-        int playerId;
-        int[] cardIds;
-        MoveRequest(int pid, int[] ids) { this.playerId = pid; this.cardIds = ids; }
+        private static final int PENDING = 1 << 21;
+        final int playerId;
+        private final AtomicInteger packed = new AtomicInteger();
+
+        MoveRequest(int pid) { this.playerId = pid; }
+
+        // Returns true if this replaced a move not yet taken by the tick.
+        boolean set(int id1, int id2, int id3) {
+            return packed.getAndSet(PENDING | id1 << 14 | id2 << 7 | id3) != 0;
+        }
+
+        // Moves the pending ids into ids[] and clears the slot; false if nothing was pending.
+        boolean take(int[] ids) {
+            int v = packed.getAndSet(0);
+            if (v == 0) return false;
+            ids[0] = v >> 14 & 127;
+            ids[1] = v >> 7 & 127;
+            ids[2] = v & 127;
+            return true;
+        }
     }
 
-    static class ClientHandler extends Thread {
+    // Lock-free token bucket kept as a single "theoretical arrival time" (GCRA):
+    // each accepted event pushes it one interval forward, and an event is refused
+    // when that would put it more than a burst ahead of now.
+    static class TokenBucket {
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final AtomicLong nextFree;
+
+        TokenBucket(int perSecond, int burst, long nowNanos) {
+            this.intervalNanos = 1_000_000_000L / perSecond;
+            this.burstNanos = intervalNanos * burst;
+            this.nextFree = new AtomicLong(nowNanos);
+        }
+
+        static TokenBucket forMoves(Clock clock) {
+            return new TokenBucket(MOVES_PER_SECOND, MOVE_BURST, clock.nanoTime());
+        }
+
+        boolean tryAcquire(long nowNanos) {
+            while (true) {
+                long tat = nextFree.get();
+                long next = (tat - nowNanos < 0 ? nowNanos : tat) + intervalNanos;
+                if (next - nowNanos > burstNanos) return false;
+                if (nextFree.compareAndSet(tat, next)) return true;
+            }
+        }
+    }
+
+    static class ClientHandler extends Thread implements Peer {
         Socket socket;
         int pid;
         PrintWriter out;
+        Room room;
+        TokenBucket moveTokens;
+        MoveRequest moveSlot;
 
         ClientHandler(Socket s, int id) { this.socket = s; this.pid = id; }
 
         public void run() {
             try {
-                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                CommandReader in = new CommandReader(socket.getInputStream());
                 out = new PrintWriter(socket.getOutputStream(), true);
 
-                send("MSG:Welcome Player " + pid);
-                
-                for (Map.Entry<Integer, Integer> entry : playerScores.entrySet()) {
-                     if (entry.getValue() > 0) send("SCORE:" + entry.getKey() + ":" + entry.getValue());
+                // First line may pick a room ("ROOM:<id>") or be an admin request;
+                // anything else joins the default room and is handled as usual.
+                int cmd = in.next();
+                if (cmd == CommandReader.EOF) return;
+                if (cmd == CommandReader.ADMIN) {
+                    handleAdmin(this, in.line());
+                    return;
                 }
-                
-                broadcastNames(); 
-                broadcastBoard();
-
-                String line;
-                while ((line = in.readLine()) != null) {
-                    if (line.startsWith("MOVE:")) {
-                        String[] parts = line.split(":")[1].split(",");
-                        int[] ids = new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
-                        synchronized (moveBuffer) {
-                            moveBuffer.add(new MoveRequest(pid, ids));
-                        }
-                    }
-                    else if (line.startsWith("NAME:")) {
-                        String name = line.split(":")[1];
-                        playerNames.put(pid, name);
-                        broadcastNames(); 
-                    }
+                String roomId = DEFAULT_ROOM;
+                if (cmd == CommandReader.ROOM) {
+                    roomId = normalizeRoom(in.arg());
+                    cmd = CommandReader.INVALID;
+                }
+                Room r = room(roomId);
+                moveTokens = TokenBucket.forMoves(r.clock);
+
+                send("MSG:Welcome Player " + pid);
+
+                // The room may have closed since the lookup (last player left, or EXPORT)
+                while (!r.join(this)) r = room(roomId);
+                room = r;
+                moveSlot = room.moveSlot(pid);
+                room.sendBoard(this);
+
+                if (cmd != CommandReader.INVALID) handleCommand(cmd, in);
+                while ((cmd = in.next()) != CommandReader.EOF) {
+                    handleCommand(cmd, in);
                 }
             } catch (Exception e) {
                 // Log exception if needed
@@ -234,15 +532,8 @@ public class SetServer {
             } finally {
                 // --- FIXED: ALWAYS RUN CLEANUP ---
                 System.out.println("Player " + pid + " disconnected.");
-                players.remove(this);
-                
-                // Remove from maps
-                playerNames.remove(pid);
-                playerScores.remove(pid);
-                
-                // Broadcast update to all remaining clients
-                broadcastNames();
-                
+                if (room != null) room.leave(this);
+
                 try {
                     socket.close();
                 } catch (IOException e) {
@@ -251,8 +542,22 @@ public class SetServer {
             }
         }
 
-        void send(String msg) {
+        private void handleCommand(int cmd, CommandReader in) {
+            if (cmd == CommandReader.MOVE) {
+                room.submitMove(moveTokens, moveSlot, in.ids);
+            }
+            else if (cmd == CommandReader.NAME) {
+                room.rename(pid, in.arg());
+            }
+            else {
+                room.invalidLines.increment();
+            }
+        }
+
+        public int pid() { return pid; }
+
+        public void send(String msg) {
             if (out != null) out.println(msg);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,243 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+// Headless balance simulator: plays many games with bots using the server's cards and isSet rule.
+// Usage: java SetSimulator <games> [boardSize] [winScore] [tickMs] [botSeconds,...] [seed]
+// e.g.   java SetSimulator 1000000 12 3 500 3,4,6 42
+public class SetSimulator {
+    private static final int LEAF_GAMES = 2000;
+    private static final int MAX_TICKS = 2000;
+
+    // Read-only after class init, shared by all workers
+    private static final SetServer.Card[] CARDS = new SetServer.Card[81];
+    static {
+        for(int n=0; n<3; n++)
+            for(int s=0; s<3; s++)
+                for(int sh=0; sh<3; sh++)
+                    for(int c=0; c<3; c++) {
+                        SetServer.Card card = new SetServer.Card(n, s, sh, c);
+                        CARDS[card.id] = card;
+                    }
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+        int boardSize = args.length > 1 ? Integer.parseInt(args[1]) : 12;
+        int winScore = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int tickMs = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        String bots = args.length > 4 ? args[4] : "4,4,4,4";
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+
+        String[] parts = bots.split(",");
+        double[] findChance = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            // Chance a bot spots a set within one tick, for a mean search time in seconds
+            findChance[i] = Math.min(1.0, tickMs / (Double.parseDouble(parts[i]) * 1000));
+        }
+        Rules rules = new Rules(boardSize, winScore, findChance);
+
+        ForkJoinPool pool = new ForkJoinPool();
+        long start = System.nanoTime();
+        Stats stats = pool.invoke(new SimTask(rules, games, new SplittableRandom(seed)));
+        double secs = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.println(">>> " + games + " games, board " + boardSize + ", win at " + winScore
+                + ", tick " + tickMs + "ms, bots " + bots + ", seed " + seed);
+        System.out.printf("Ran in %.2fs on %d threads (%.0f games/s)%n", secs, pool.getParallelism(), games / secs);
+        stats.print(tickMs, parts.length);
+    }
+
+    static class Rules {
+        final int boardSize, winScore;
+        final double[] findChance;
+        Rules(int boardSize, int winScore, double[] findChance) {
+            this.boardSize = boardSize; this.winScore = winScore; this.findChance = findChance;
+        }
+    }
+
+    // Per-task results; merged bottom-up so no worker ever writes shared state.
+    static class Stats {
+        long games, wins, deadBoards, exhausted, timeouts;
+        long ticks, conflicts, sets;
+        final long[] winsByBot;
+        final long[] lengthHist = new long[MAX_TICKS + 1];
+
+        Stats(int bots) { winsByBot = new long[bots]; }
+
+        Stats merge(Stats o) {
+            games += o.games; wins += o.wins; deadBoards += o.deadBoards;
+            exhausted += o.exhausted; timeouts += o.timeouts;
+            ticks += o.ticks; conflicts += o.conflicts; sets += o.sets;
+            for (int i = 0; i < winsByBot.length; i++) winsByBot[i] += o.winsByBot[i];
+            for (int i = 0; i < lengthHist.length; i++) lengthHist[i] += o.lengthHist[i];
+            return this;
+        }
+
+        long percentile(double p) {
+            long target = (long) Math.ceil(games * p), seen = 0;
+            for (int i = 0; i < lengthHist.length; i++) {
+                seen += lengthHist[i];
+                if (seen >= target) return i;
+            }
+            return MAX_TICKS;
+        }
+
+        void print(int tickMs, int bots) {
+            System.out.printf("Won: %.2f%%  dead board: %.2f%%  deck exhausted: %.2f%%  timeout: %.2f%%%n",
+                    pct(wins), pct(deadBoards), pct(exhausted), pct(timeouts));
+            System.out.printf("Conflicts per tick: %.4f  sets per game: %.2f%n",
+                    (double) conflicts / ticks, (double) sets / games);
+            System.out.printf("Game length (ticks): mean %.1f  p50 %d  p90 %d  p99 %d  (mean %.1fs)%n",
+                    (double) ticks / games, percentile(0.5), percentile(0.9), percentile(0.99),
+                    (double) ticks / games * tickMs / 1000);
+            for (int i = 0; i < bots; i++) {
+                System.out.printf("Bot %d wins: %.2f%%%n", i + 1, pct(winsByBot[i]));
+            }
+        }
+
+        private double pct(long n) { return 100.0 * n / games; }
+    }
+
+    static class SimTask extends RecursiveTask<Stats> {
+        private static final long serialVersionUID = 1L;
+
+        final Rules rules;
+        final long games;
+        final SplittableRandom rng;
+
+        SimTask(Rules rules, long games, SplittableRandom rng) {
+            this.rules = rules; this.games = games; this.rng = rng;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (games <= LEAF_GAMES) {
+                Game game = new Game(rules, rng);
+                Stats stats = new Stats(rules.findChance.length);
+                for (long i = 0; i < games; i++) game.play(stats);
+                return stats;
+            }
+            long half = games / 2;
+            SimTask left = new SimTask(rules, half, rng.split());
+            SimTask right = new SimTask(rules, games - half, rng);
+            left.fork();
+            return right.compute().merge(left.join());
+        }
+    }
+
+    // One worker's reusable game state. Tick rules mirror SetServer.Room.processMoveBuffer:
+    // claims resolve in player id order, a claim touching an already taken card is a conflict,
+    // and only 3 cards are dealt per tick however many sets were taken.
+    static class Game {
+        final Rules rules;
+        final SplittableRandom rng;
+        final int[] deck = new int[81];
+        final int[] board;
+        final int[] found;
+        final int[] claims;
+        final int[] scores;
+        final boolean[] taken = new boolean[81];
+        int deckPos, boardLen;
+
+        Game(Rules rules, SplittableRandom rng) {
+            this.rules = rules;
+            this.rng = rng;
+            board = new int[rules.boardSize];
+            int n = rules.boardSize;
+            found = new int[Math.max(3, n * (n - 1) * (n - 2) / 2)];
+            claims = new int[rules.findChance.length];
+            scores = new int[rules.findChance.length];
+        }
+
+        void play(Stats stats) {
+            for (int i = 0; i < 81; i++) deck[i] = i;
+            for (int i = 80; i > 0; i--) {
+                int j = rng.nextInt(i + 1);
+                int t = deck[i]; deck[i] = deck[j]; deck[j] = t;
+            }
+            deckPos = 0;
+            boardLen = 0;
+            Arrays.fill(scores, 0);
+            deal(rules.boardSize);
+
+            int tick = 0;
+            while (true) {
+                if (tick == MAX_TICKS) { stats.timeouts++; break; }
+                int sets = findSets();
+                if (sets == 0) {
+                    if (deckPos == 81) stats.exhausted++; else stats.deadBoards++;
+                    break;
+                }
+                tick++;
+                int winner = resolve(sets, stats);
+                if (winner >= 0) {
+                    stats.wins++;
+                    stats.winsByBot[winner]++;
+                    break;
+                }
+            }
+            stats.games++;
+            stats.ticks += tick;
+            stats.lengthHist[tick]++;
+        }
+
+        // Returns the winning bot, or -1 if nobody reached the win score this tick.
+        private int resolve(int sets, Stats stats) {
+            int claimCount = 0;
+            for (int bot = 0; bot < claims.length; bot++) {
+                claims[bot] = rng.nextDouble() < rules.findChance[bot] ? rng.nextInt(sets) : -1;
+                if (claims[bot] >= 0) claimCount++;
+            }
+            if (claimCount == 0) return -1;
+
+            int winner = -1;
+            boolean removed = false;
+            for (int bot = 0; bot < claims.length; bot++) {
+                if (claims[bot] < 0) continue;
+                int s = claims[bot] * 3;
+                if (taken[found[s]] || taken[found[s + 1]] || taken[found[s + 2]]) {
+                    stats.conflicts++;
+                    continue;
+                }
+                taken[found[s]] = taken[found[s + 1]] = taken[found[s + 2]] = true;
+                removed = true;
+                stats.sets++;
+                if (++scores[bot] >= rules.winScore && winner < 0) winner = bot;
+            }
+
+            if (removed) {
+                int len = 0;
+                for (int i = 0; i < boardLen; i++) {
+                    if (taken[board[i]]) taken[board[i]] = false;
+                    else board[len++] = board[i];
+                }
+                boardLen = len;
+                deal(3);
+            }
+            return winner;
+        }
+
+        // Fills found[] with the card id triples of every set on the board and returns the count.
+        private int findSets() {
+            int count = 0;
+            for (int i = 0; i < boardLen; i++)
+                for (int j = i + 1; j < boardLen; j++)
+                    for (int k = j + 1; k < boardLen; k++) {
+                        if (SetServer.isSet(CARDS[board[i]], CARDS[board[j]], CARDS[board[k]])) {
+                            found[count * 3] = board[i];
+                            found[count * 3 + 1] = board[j];
+                            found[count * 3 + 2] = board[k];
+                            count++;
+                        }
+                    }
+            return count;
+        }
+
+        private void deal(int count) {
+            for (int i = 0; i < count && deckPos < 81 && boardLen < board.length; i++) {
+                board[boardLen++] = deck[deckPos++];
+            }
+        }
+    }
+}
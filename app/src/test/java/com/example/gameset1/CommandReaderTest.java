@@ -0,0 +1,194 @@
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the byte-level protocol reader used by SetServer.
+ */
+public class CommandReaderTest {
+
+    private static CommandReader reader(String text) {
+        return new CommandReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void parsesMove() throws IOException {
+        CommandReader in = reader("MOVE:0,41,80\n");
+        assertEquals(CommandReader.MOVE, in.next());
+        assertArrayEquals(new int[]{0, 41, 80}, in.ids);
+        assertEquals(CommandReader.EOF, in.next());
+    }
+
+    @Test
+    public void parsesNameRoomAndAdmin() throws IOException {
+        CommandReader in = reader("NAME:Ada:ignored\r\nROOM:blue\nSTATS:main\nHELLO\n\nNAME:\n");
+        assertEquals(CommandReader.NAME, in.next());
+        assertEquals("Ada", in.arg());
+        assertEquals(CommandReader.ROOM, in.next());
+        assertEquals("blue", in.arg());
+        assertEquals(CommandReader.ADMIN, in.next());
+        assertEquals("STATS:main", in.line());
+        assertEquals(CommandReader.INVALID, in.next());
+        assertEquals(CommandReader.INVALID, in.next());
+        assertEquals(CommandReader.INVALID, in.next());
+        assertEquals(CommandReader.EOF, in.next());
+    }
+
+    @Test
+    public void rejectsMalformedMoves() throws IOException {
+        String[] bad = {"MOVE:", "MOVE:1,2", "MOVE:1,2,3,4", "MOVE:1,,3", "MOVE:-1,2,3", "MOVE:1,2,81",
+                "MOVE:1,2,999999999999", "MOVE:a,b,c", "MOVE:1,2,3 ", "MOVE 1,2,3", "move:1,2,3"};
+        for (String line : bad) {
+            assertEquals(line, CommandReader.INVALID, reader(line + "\n").next());
+        }
+    }
+
+    @Test
+    public void readsLastLineWithoutNewline() throws IOException {
+        CommandReader in = reader("MOVE:1,2,3\r\nMOVE:4,5,6");
+        assertEquals(CommandReader.MOVE, in.next());
+        assertEquals(CommandReader.MOVE, in.next());
+        assertArrayEquals(new int[]{4, 5, 6}, in.ids);
+        assertEquals(CommandReader.EOF, in.next());
+    }
+
+    @Test
+    public void skipsOverlongLine() throws IOException {
+        StringBuilder sb = new StringBuilder("NAME:");
+        for (int i = 0; i < 5000; i++) sb.append('x');
+        CommandReader in = reader(sb + "\nMOVE:7,8,9\n");
+        assertEquals(CommandReader.INVALID, in.next());
+        assertEquals(CommandReader.MOVE, in.next());
+        assertArrayEquals(new int[]{7, 8, 9}, in.ids);
+    }
+
+    @Test
+    public void fuzzNeverThrowsAndRoundTripsValidMoves() throws IOException {
+        Random rnd = new Random(1234);
+        String alphabet = "MOVENAMEROOM:,0123456789-\r\n ";
+        for (int round = 0; round < 2000; round++) {
+            // Valid moves mixed with garbage, delivered in random-sized reads
+            StringBuilder sb = new StringBuilder();
+            int moves = 0;
+            int[] expected = new int[300];
+            for (int i = 0; i < 100; i++) {
+                if (rnd.nextBoolean()) {
+                    int a = rnd.nextInt(81), b = rnd.nextInt(81), c = rnd.nextInt(81);
+                    sb.append("MOVE:").append(a).append(',').append(b).append(',').append(c).append('\n');
+                    expected[moves * 3] = a;
+                    expected[moves * 3 + 1] = b;
+                    expected[moves * 3 + 2] = c;
+                    moves++;
+                } else {
+                    int len = rnd.nextInt(40);
+                    for (int k = 0; k < len; k++) {
+                        char ch = alphabet.charAt(rnd.nextInt(alphabet.length()));
+                        if (ch != '\n' && ch != '\r') sb.append(ch);
+                    }
+                    sb.append('\n');
+                }
+            }
+            CommandReader in = new CommandReader(new ChunkedStream(sb.toString().getBytes(StandardCharsets.UTF_8), rnd));
+
+            int seenMoves = 0;
+            int cmd;
+            while ((cmd = in.next()) != CommandReader.EOF) {
+                if (cmd != CommandReader.MOVE) continue;
+                for (int id : in.ids) assertTrue(id >= 0 && id <= 80);
+                // Garbage lines may happen to be valid moves too, so only check order of the real ones
+                if (seenMoves < moves && in.ids[0] == expected[seenMoves * 3]
+                        && in.ids[1] == expected[seenMoves * 3 + 1] && in.ids[2] == expected[seenMoves * 3 + 2]) {
+                    seenMoves++;
+                }
+            }
+            assertEquals(moves, seenMoves);
+
+            // Pure random bytes must never throw
+            byte[] noise = new byte[rnd.nextInt(3000)];
+            rnd.nextBytes(noise);
+            in = new CommandReader(new ChunkedStream(noise, rnd));
+            while (in.next() != CommandReader.EOF) {
+                for (int id : in.ids) assertTrue(id >= 0 && id <= 80);
+            }
+        }
+    }
+
+    @Test
+    public void moveParsingDoesNotAllocate() throws IOException {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        CommandReader in = new CommandReader(new RepeatingStream("MOVE:12,40,79\n".getBytes(StandardCharsets.US_ASCII)));
+
+        long sum = 0;
+        for (int i = 0; i < 200_000; i++) {
+            in.next();
+            sum += in.ids[2];
+        }
+
+        int ops = 1_000_000;
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < ops; i++) {
+            if (in.next() != CommandReader.MOVE) fail();
+            sum += in.ids[2];
+        }
+        long after = mx.getThreadAllocatedBytes(tid);
+
+        double bytesPerOp = (double) (after - before) / ops;
+        System.out.println("CommandReader MOVE: " + bytesPerOp + " bytes/op (checksum " + sum + ")");
+        assertTrue("allocated " + bytesPerOp + " bytes/op", bytesPerOp < 0.1);
+    }
+
+    // Hands out the data in random-sized pieces, like a socket would.
+    private static class ChunkedStream extends InputStream {
+        private final byte[] data;
+        private final Random rnd;
+        private int pos;
+
+        ChunkedStream(byte[] data, Random rnd) { this.data = data; this.rnd = rnd; }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos == data.length) return -1;
+            int n = Math.min(Math.min(len, data.length - pos), 1 + rnd.nextInt(64));
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    // Endless copies of one line, without allocating per read.
+    private static class RepeatingStream extends InputStream {
+        private final byte[] line;
+        private int pos;
+
+        RepeatingStream(byte[] line) { this.line = line; }
+
+        @Override
+        public int read() {
+            int b = line[pos];
+            pos = (pos + 1) % line.length;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            for (int i = 0; i < len; i++) {
+                b[off + i] = line[pos];
+                pos = (pos + 1) % line.length;
+            }
+            return len;
+        }
+    }
+}
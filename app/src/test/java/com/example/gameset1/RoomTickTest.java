@@ -0,0 +1,194 @@
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives SetServer rooms tick by tick on a virtual clock with in-memory players,
+ * so conflict resolution and dealing can be checked without sockets or sleeping.
+ */
+public class RoomTickTest {
+
+    static class VirtualClock implements SetServer.Clock {
+        long now;
+
+        public long nanoTime() { return now; }
+
+        public void sleep(long millis) { now += millis * 1_000_000L; }
+    }
+
+    static class MemoryPeer implements SetServer.Peer {
+        final int pid;
+        final List<String> received = new ArrayList<>();
+        // Move allowance, like the ClientHandler it stands in for
+        final SetServer.TokenBucket tokens;
+        String board;
+
+        MemoryPeer(int pid, SetServer.Clock clock) {
+            this.pid = pid;
+            this.tokens = SetServer.TokenBucket.forMoves(clock);
+        }
+
+        public int pid() { return pid; }
+
+        public void send(String msg) {
+            received.add(msg);
+            if (msg.startsWith("BOARD:")) board = msg;
+        }
+
+        int count(String msg) {
+            return Collections.frequency(received, msg);
+        }
+    }
+
+    static class Harness {
+        final VirtualClock clock = new VirtualClock();
+        final SetServer.Room room;
+        final List<MemoryPeer> peers = new ArrayList<>();
+
+        Harness(long seed, int players) {
+            room = new SetServer.Room("test", clock, new Random(seed));
+            for (int pid = 1; pid <= players; pid++) {
+                MemoryPeer p = new MemoryPeer(pid, clock);
+                room.join(p);
+                room.sendBoard(p);
+                peers.add(p);
+            }
+        }
+
+        void tick() throws InterruptedException {
+            SetServer.tick(clock, Collections.singletonList(room));
+        }
+
+        // Goes through the same intake as a MOVE line from a socket
+        void move(int pid, int[] ids) {
+            room.submitMove(peers.get(pid - 1).tokens, room.moveSlot(pid), ids);
+        }
+
+        // First set on the board as the players currently see it, or null on a dead board
+        int[] findSet() {
+            String[] raw = peers.get(0).board.substring(6).split(",");
+            List<SetServer.Card> cards = new ArrayList<>();
+            for (String rc : raw) {
+                if (rc.isEmpty()) continue;
+                String[] f = rc.split("-");
+                cards.add(new SetServer.Card(Integer.parseInt(f[1]), Integer.parseInt(f[2]),
+                        Integer.parseInt(f[3]), Integer.parseInt(f[4])));
+            }
+            for (int i = 0; i < cards.size(); i++)
+                for (int j = i + 1; j < cards.size(); j++)
+                    for (int k = j + 1; k < cards.size(); k++)
+                        if (SetServer.isSet(cards.get(i), cards.get(j), cards.get(k)))
+                            return new int[]{cards.get(i).id, cards.get(j).id, cards.get(k).id};
+            return null;
+        }
+    }
+
+    // Each tick one player, taking turns, claims the first set on the board.
+    private static List<String> playScripted(long seed, int ticks) throws InterruptedException {
+        Harness h = new Harness(seed, 3);
+        for (int t = 0; t < ticks; t++) {
+            int[] set = h.findSet();
+            if (set != null) h.move(1 + t % 3, set);
+            h.tick();
+        }
+        return h.peers.get(0).received;
+    }
+
+    @Test
+    public void sameSeedPlaysSameGame() throws InterruptedException {
+        assertEquals(playScripted(7, 300), playScripted(7, 300));
+        assertNotEquals(new Harness(7, 1).peers.get(0).board, new Harness(8, 1).peers.get(0).board);
+    }
+
+    @Test
+    public void lowerPlayerIdWinsConflict() throws InterruptedException {
+        Harness h = new Harness(7, 2);
+        int[] set = h.findSet();
+        assertNotNull(set);
+
+        h.move(2, set);
+        h.move(1, set);
+        h.tick();
+
+        MemoryPeer p1 = h.peers.get(0), p2 = h.peers.get(1);
+        assertEquals(1, p1.count("SCORE:1:1"));
+        assertEquals(0, p1.count("SCORE:2:1"));
+        assertEquals(1, p2.count("MSG:Too Slow!"));
+        assertEquals(0, p1.count("MSG:Too Slow!"));
+    }
+
+    @Test
+    public void laterMoveReplacesEarlierInSameTick() throws InterruptedException {
+        Harness h = new Harness(7, 1);
+        int[] set = h.findSet();
+        assertNotNull(set);
+
+        h.move(1, new int[]{set[0], set[1], set[1]});
+        h.move(1, set);
+        h.tick();
+
+        assertEquals(1, h.peers.get(0).count("SCORE:1:1"));
+        assertEquals(1, h.room.replacedMoves.sum());
+    }
+
+    @Test
+    public void rateLimitFollowsRoomClock() {
+        Harness h = new Harness(7, 1);
+        int[] ids = {0, 1, 2};
+
+        for (int i = 0; i < 6; i++) h.move(1, ids);
+        assertEquals(1, h.room.rateLimitedMoves.sum());
+
+        h.clock.sleep(200);
+        h.move(1, ids);
+        assertEquals(1, h.room.rateLimitedMoves.sum());
+        h.move(1, ids);
+        assertEquals(2, h.room.rateLimitedMoves.sum());
+    }
+
+    @Test
+    public void moveIntakeDoesNotAllocate() throws InterruptedException {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Harness h = new Harness(7, 1);
+        SetServer.TokenBucket tokens = h.peers.get(0).tokens;
+        SetServer.MoveRequest slot = h.room.moveSlot(1);
+        int[] ids = {0, 1, 2};
+
+        for (int i = 0; i < 200_000; i++) {
+            h.clock.sleep(200);
+            h.room.submitMove(tokens, slot, ids);
+        }
+
+        int ops = 1_000_000;
+        long tid = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < ops; i++) {
+            h.clock.sleep(200);
+            h.room.submitMove(tokens, slot, ids);
+        }
+        long after = mx.getThreadAllocatedBytes(tid);
+
+        double bytesPerOp = (double) (after - before) / ops;
+        System.out.println("Room.submitMove: " + bytesPerOp + " bytes/op");
+        assertTrue("allocated " + bytesPerOp + " bytes/op", bytesPerOp < 0.1);
+        assertEquals(0, h.room.rateLimitedMoves.sum());
+    }
+
+    @Test
+    public void drivesThousandsOfTicks() throws InterruptedException {
+        int ticks = 10_000;
+        long start = System.nanoTime();
+        List<String> log = playScripted(42, ticks);
+        double secs = (System.nanoTime() - start) / 1e9;
+        System.out.printf("RoomTickTest: %d ticks in %.3fs (%.0f ticks/s)%n", ticks, secs, ticks / secs);
+
+        assertEquals("TICK:" + ticks, log.get(log.size() - 1));
+        assertTrue(log.contains("WIN:1") || log.contains("WIN:2") || log.contains("WIN:3"));
+    }
+}